@@ -0,0 +1,110 @@
+package com.shyamanand.fileupload.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples heap usage, garbage collection and open file descriptors while a run is in progress. The server runs in
+ * the same JVM as the load generator, so these figures cover both; the client side allocates little beyond its
+ * upload buffers, so growth between runs points at the server.
+ */
+public class JvmMonitor {
+    private static final long SAMPLE_INTERVAL_MILLIS = 200;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+    private ScheduledExecutorService sampler;
+    private long gcCountAtStart;
+    private long gcTimeAtStart;
+    private long openFdsAtStart;
+    private volatile long peakHeapBytes;
+    private volatile long peakOpenFds;
+
+    public void start() {
+        gcCountAtStart = gcCount();
+        gcTimeAtStart = gcTimeMillis();
+        openFdsAtStart = openFileDescriptors();
+        peakHeapBytes = 0;
+        peakOpenFds = 0;
+
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-jvm-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling and adds the collected figures to the report. GC and file descriptor totals grow with the
+     * amount of work done, so they are gated per 1000 requests and the totals are only reported.
+     *
+     * @param report     Report to add the JVM metrics to
+     * @param operations Number of requests completed while sampling
+     */
+    public void stop(LoadReport report, long operations) throws InterruptedException {
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+        sample();
+
+        double perThousand = operations > 0 ? 1000.0 / operations : 0;
+        long gcCount = gcCount() - gcCountAtStart;
+        long gcTime = gcTimeMillis() - gcTimeAtStart;
+        report.put("gc.count.per-1k-ops", gcCount * perThousand);
+        report.put("gc.pause-ms.per-1k-ops", gcTime * perThousand);
+        report.put("info.gc.count", gcCount);
+        report.put("info.gc.time.ms", gcTime);
+        report.put("heap.used.peak.mb", peakHeapBytes / (1024.0 * 1024.0));
+
+        long openFds = openFileDescriptors();
+        if (openFds >= 0) {
+            // Descriptors still open at the end that were not open at the start, eg. directory streams left open.
+            report.put("fd.growth.per-1k-ops", Math.max(0, openFds - openFdsAtStart) * perThousand);
+            report.put("info.fd.open.peak", peakOpenFds);
+            report.put("info.fd.open.end", openFds);
+        }
+
+        // Heap still in use after a full collection, to catch content retained across requests.
+        System.gc();
+        report.put("heap.used.after-gc.mb", memory.getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0));
+    }
+
+    private void sample() {
+        peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+        peakOpenFds = Math.max(peakOpenFds, openFileDescriptors());
+    }
+
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private long gcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Returns the number of open file descriptors, or -1 where the platform does not expose it.
+     */
+    private long openFileDescriptors() {
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            return ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,55 @@
+package com.shyamanand.fileupload.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Records latency samples for one kind of operation. Not thread safe; each worker keeps its own recorders, which
+ * are merged once the run is over.
+ */
+public class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public void recordError() {
+        errors++;
+    }
+
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+        errors += other.errors;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the latency at the given quantile, in milliseconds.
+     *
+     * @param quantile Quantile between 0 and 1, eg. 0.99 for p99
+     * @return Latency in milliseconds, or 0 if nothing was recorded
+     */
+    public double percentileMillis(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))] / 1_000_000.0;
+    }
+}
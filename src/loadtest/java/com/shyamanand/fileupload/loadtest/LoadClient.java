@@ -0,0 +1,128 @@
+package com.shyamanand.fileupload.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal HTTP client for the {@code /files} endpoints, built on {@link HttpURLConnection} so that connections are
+ * kept alive between requests the way a browser would.
+ */
+public class LoadClient {
+    private static final String BOUNDARY = "----loadtest-boundary-7d9f2c1a";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String baseUrl;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    public LoadClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Uploads one part of a file to {@code POST /files/parts}.
+     *
+     * @param checksum Checksum for the original file
+     * @param partName Name of the part, eg. "video.mp4.part0"
+     * @param data     Buffer holding the file contents
+     * @param offset   Offset of the part in the buffer
+     * @param length   Length of the part
+     * @throws IOException on a connection failure or a non-2xx response
+     */
+    public void uploadPart(String checksum, String partName, byte[] data, int offset, int length) throws IOException {
+        byte[] head = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"checksum\"\r\n\r\n"
+                + checksum + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"chunk\"; filename=\"" + partName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = open("/files/parts", "POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+        connection.setFixedLengthStreamingMode(head.length + length + tail.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(head);
+            out.write(data, offset, length);
+            out.write(tail);
+        }
+        readBody(connection, "/files/parts", -1, null);
+    }
+
+    /**
+     * Joins the uploaded parts with {@code GET /files/{checksum}}.
+     *
+     * @param checksum Checksum the parts were uploaded under
+     * @return Name of the combined file, to be used for playback
+     * @throws IOException on a connection failure or a non-2xx response
+     */
+    public String finalizeFile(String checksum) throws IOException {
+        String path = "/files/" + checksum;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        readBody(open(path, "GET"), path, -1, body);
+
+        JsonNode data = objectMapper.readTree(body.toByteArray()).get("data");
+        if (data == null || !data.isTextual()) {
+            throw new IOException("No file name in response for " + path);
+        }
+        return data.asText();
+    }
+
+    /**
+     * Plays a file with {@code GET /files/play/{filename}}, reading the whole response.
+     *
+     * @param fileName   File to play
+     * @param rangeStart Byte offset to seek to, sent as a Range header; negative to play from the start
+     * @return Number of bytes received
+     * @throws IOException on a connection failure or a non-2xx response
+     */
+    public long play(String fileName, long rangeStart) throws IOException {
+        String path = "/files/play/" + fileName;
+        HttpURLConnection connection = open(path, "GET");
+        if (rangeStart >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + rangeStart + "-");
+        }
+        return readBody(connection, path, rangeStart, null);
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(5_000);
+        connection.setReadTimeout(60_000);
+        return connection;
+    }
+
+    /**
+     * Drains the response so the connection can go back to the keep-alive pool.
+     */
+    private long readBody(HttpURLConnection connection, String path, long rangeStart, OutputStream sink) throws IOException {
+        int status = connection.getResponseCode();
+        boolean success = status >= 200 && status < 300;
+        long total = 0;
+        try (InputStream in = success ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (sink != null) {
+                        sink.write(buffer, 0, read);
+                    }
+                    total += read;
+                }
+            }
+        }
+        if (!success) {
+            throw new IOException("HTTP " + status + " for " + connection.getRequestMethod() + " " + path
+                    + (rangeStart >= 0 ? " (range " + rangeStart + "-)" : ""));
+        }
+        return total;
+    }
+}
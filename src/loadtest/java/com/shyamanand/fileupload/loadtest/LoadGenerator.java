@@ -0,0 +1,471 @@
+package com.shyamanand.fileupload.loadtest;
+
+import com.shyamanand.fileupload.FileUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Runs a workload profile against the {@code /files} endpoints and checks the results against a stored baseline.
+ * <p>
+ * The application is started in-process on a random port bound to 127.0.0.1, with a temporary uploads directory
+ * that is removed when the run is over. Uploaders send files in chunks to {@code /files/parts} and join them with
+ * {@code /files/{checksum}}; viewers play files seeded before the run through {@code /files/play/{filename}}, and
+ * seek by repeating the request with a Range header.
+ * <p>
+ * Options, all given as {@code --name=value}:
+ * <ul>
+ * <li>{@code profile} - profile name under {@code loadtest/profiles/}, or path to a properties file. Default
+ * "playback-heavy"</li>
+ * <li>{@code baseline} - baseline to check against. Default {@code src/loadtest/baselines/<profile>.properties}</li>
+ * <li>{@code report} - where to write this run's results. Default {@code target/loadtest/<profile>.properties}</li>
+ * <li>{@code tolerance} - allowed relative regression, overriding the profile's</li>
+ * <li>{@code update-baseline} - store this run as the new baseline instead of checking against it</li>
+ * <li>{@code allow-missing-baseline} - report the run without checking it when there is no baseline</li>
+ * </ul>
+ * Exits with 0 when the run is within the baseline, 1 when it regressed, and 2 when the run could not be checked:
+ * an operation never succeeded or failed more often than the profile's {@code maxErrorRate}, a run with errors
+ * was to be recorded as the baseline, or there is no baseline and {@code allow-missing-baseline} was not given.
+ */
+public class LoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    static final String UPLOAD_PART = "upload-part";
+    static final String FINALIZE = "finalize";
+    static final String PLAY = "play";
+    static final String SEEK = "seek";
+    private static final List<String> OPERATIONS = Arrays.asList(UPLOAD_PART, FINALIZE, PLAY, SEEK);
+
+    private final WorkloadProfile profile;
+    private final String baseUrl;
+    private final Path uploadsDir;
+    private final List<String> playlist = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param profile    Workload to run
+     * @param baseUrl    URL the application listens on
+     * @param uploadsDir Uploads directory of the application, used to check the joined files
+     */
+    public LoadGenerator(WorkloadProfile profile, String baseUrl, Path uploadsDir) {
+        this.profile = profile;
+        this.baseUrl = baseUrl;
+        this.uploadsDir = uploadsDir;
+    }
+
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = run(parseOptions(args));
+        } catch (Exception e) {
+            logger.error("Load test failed", e);
+            exitCode = 2;
+        }
+        System.exit(exitCode);
+    }
+
+    private static int run(Map<String, String> options) throws Exception {
+        WorkloadProfile profile = WorkloadProfile.load(options.getOrDefault("profile", "playback-heavy"));
+        double tolerance = options.containsKey("tolerance")
+                ? Double.parseDouble(options.get("tolerance")) : profile.getTolerance();
+        Path baseline = Paths.get(options.getOrDefault("baseline",
+                "src/loadtest/baselines/" + profile.getName() + ".properties"));
+        Path reportPath = Paths.get(options.getOrDefault("report",
+                "target/loadtest/" + profile.getName() + ".properties"));
+        boolean updateBaseline = Boolean.parseBoolean(options.getOrDefault("update-baseline", "false"));
+        boolean allowMissingBaseline = Boolean.parseBoolean(options.getOrDefault("allow-missing-baseline", "false"));
+
+        if (!updateBaseline && !allowMissingBaseline && !Files.exists(baseline)) {
+            logger.error("No baseline at {}. Record one with --update-baseline, or pass --allow-missing-baseline "
+                    + "to run without a regression check", baseline);
+            return 2;
+        }
+
+        // Keep one idle connection per client, as browsers do, instead of the JDK default of 5.
+        System.setProperty("http.maxConnections", String.valueOf(profile.getUploaders() + profile.getViewers()));
+
+        logger.info("Running profile {}", profile);
+        Path uploadsDir = Files.createTempDirectory("loadtest-uploads");
+        ConfigurableApplicationContext context = startServer(uploadsDir, profile);
+        LoadReport report;
+        try {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            report = new LoadGenerator(profile, "http://127.0.0.1:" + port, uploadsDir).run();
+        } finally {
+            context.close();
+            deleteRecursively(uploadsDir);
+        }
+
+        System.out.println("Results for profile '" + profile.getName() + "':");
+        report.print(System.out);
+        report.store(reportPath, "Load test results for profile " + profile.getName());
+
+        List<String> problems = report.healthProblems(operations(profile), profile.getMaxErrorRate());
+        if (!problems.isEmpty()) {
+            logger.error("Run failed, not checking it against the baseline:");
+            problems.forEach(problem -> logger.error("  {}", problem));
+            return 2;
+        }
+
+        if (updateBaseline) {
+            if (report.totalErrors() > 0) {
+                logger.error("Not recording a run with {} failed requests as the baseline",
+                        Math.round(report.totalErrors()));
+                return 2;
+            }
+            report.store(baseline, "Load test baseline for profile " + profile.getName());
+            logger.info("Baseline updated at {}", baseline);
+            return 0;
+        }
+        if (!Files.exists(baseline)) {
+            logger.warn("No baseline at {}, skipping regression check as --allow-missing-baseline was given",
+                    baseline);
+            return 0;
+        }
+
+        List<String> regressions = report.regressionsAgainst(LoadReport.load(baseline), tolerance);
+        if (regressions.isEmpty()) {
+            logger.info("Within {}% of baseline {}", Math.round(tolerance * 100), baseline);
+            return 0;
+        }
+        logger.error("{} metric(s) regressed beyond {}% of baseline {}:",
+                regressions.size(), Math.round(tolerance * 100), baseline);
+        regressions.forEach(regression -> logger.error("  {}", regression));
+        return 1;
+    }
+
+    /**
+     * Seeds the files for viewers, runs the warmup and then the measured phase.
+     *
+     * @return Metrics for the measured phase
+     */
+    public LoadReport run() throws Exception {
+        Worker seeder = new Worker();
+        LoadClient client = new LoadClient(baseUrl);
+        byte[] content = new byte[profile.getFileSizeBytes()];
+        MessageDigest digest = sha256();
+        for (int i = 0; i < profile.getSeedFiles(); i++) {
+            String checksum = fillRandom(content, digest);
+            playlist.add(uploadFile(client, seeder, fileName("seed-" + i), checksum, content));
+            deleteRecursively(uploadsDir.resolve(checksum));
+        }
+        for (String fileName : playlist) {
+            long length = client.play(fileName, -1);
+            if (length != profile.getFileSizeBytes()) {
+                throw new IOException("Seeded file '" + fileName + "' played back " + length + " bytes, expected "
+                        + profile.getFileSizeBytes());
+            }
+        }
+        logger.info("Seeded {} files", playlist.size());
+
+        if (profile.getWarmupSeconds() > 0) {
+            logger.info("Warming up for {}s", profile.getWarmupSeconds());
+            runPhase("warmup", profile.getWarmupSeconds());
+        }
+
+        logger.info("Measuring for {}s", profile.getDurationSeconds());
+        JvmMonitor monitor = new JvmMonitor();
+        monitor.start();
+        long start = System.nanoTime();
+        List<Worker> workers = runPhase("run", profile.getDurationSeconds());
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        LoadReport report = new LoadReport();
+        Map<String, LatencyRecorder> merged = new HashMap<>();
+        long bytesUploaded = 0;
+        long bytesPlayed = 0;
+        for (Worker worker : workers) {
+            worker.recorders.forEach((operation, recorder) ->
+                    merged.computeIfAbsent(operation, key -> new LatencyRecorder()).merge(recorder));
+            bytesUploaded += worker.bytesUploaded;
+            bytesPlayed += worker.bytesPlayed;
+        }
+
+        long totalOps = 0;
+        for (LatencyRecorder recorder : merged.values()) {
+            totalOps += recorder.getCount();
+        }
+        report.put("throughput.total.ops", totalOps / seconds);
+        // Byte rates are reported but not gated: seeks are served as whole files until /play honours Range, so
+        // supporting it would lower the play rate even though it is an improvement.
+        if (profile.getUploaders() > 0) {
+            report.put("info.upload.mb-per-s", bytesUploaded / seconds / (1024 * 1024));
+        }
+        if (profile.getViewers() > 0) {
+            report.put("info.play.mb-per-s", bytesPlayed / seconds / (1024 * 1024));
+        }
+        for (String operation : OPERATIONS) {
+            if (merged.containsKey(operation)) {
+                report.putOperation(operation, merged.get(operation), seconds);
+            }
+        }
+        monitor.stop(report, totalOps);
+        return report;
+    }
+
+    /**
+     * Returns the operations a profile exercises.
+     */
+    private static List<String> operations(WorkloadProfile profile) {
+        List<String> operations = new ArrayList<>();
+        if (profile.getUploaders() > 0) {
+            operations.add(UPLOAD_PART);
+            operations.add(FINALIZE);
+        }
+        if (profile.getViewers() > 0) {
+            operations.add(PLAY);
+            if (profile.getSeeksPerPlay() > 0) {
+                operations.add(SEEK);
+            }
+        }
+        return operations;
+    }
+
+    private List<Worker> runPhase(String phase, int seconds) throws InterruptedException, ExecutionException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(profile.getUploaders() + profile.getViewers(),
+                new NamedThreadFactory("loadtest-" + phase));
+        List<Future<Worker>> futures = new ArrayList<>();
+        for (int i = 0; i < profile.getUploaders(); i++) {
+            final String prefix = phase + "-u" + i;
+            futures.add(executor.submit(() -> upload(prefix, deadline)));
+        }
+        for (int i = 0; i < profile.getViewers(); i++) {
+            futures.add(executor.submit(() -> view(deadline)));
+        }
+        executor.shutdown();
+
+        List<Worker> workers = new ArrayList<>();
+        for (Future<Worker> future : futures) {
+            workers.add(future.get());
+        }
+        return workers;
+    }
+
+    private Worker upload(String prefix, long deadline) throws NoSuchAlgorithmException {
+        Worker worker = new Worker();
+        LoadClient client = new LoadClient(baseUrl);
+        MessageDigest digest = sha256();
+        byte[] content = new byte[profile.getFileSizeBytes()];
+        int sequence = 0;
+        while (System.nanoTime() < deadline) {
+            String checksum = fillRandom(content, digest);
+            String fileName = fileName(prefix + "-" + sequence++);
+            try {
+                uploadFile(client, worker, fileName, checksum, content);
+            } catch (IOException e) {
+                worker.failed(e);
+            } finally {
+                discard(fileName, checksum);
+            }
+            think();
+        }
+        return worker;
+    }
+
+    private Worker view(long deadline) {
+        Worker worker = new Worker();
+        LoadClient client = new LoadClient(baseUrl);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            String fileName = playlist.get(random.nextInt(playlist.size()));
+            try {
+                worker.bytesPlayed += worker.timed(PLAY, () -> client.play(fileName, -1));
+                for (int i = 0; i < profile.getSeeksPerPlay(); i++) {
+                    long offset = random.nextLong(profile.getFileSizeBytes());
+                    worker.bytesPlayed += worker.timed(SEEK, () -> client.play(fileName, offset));
+                }
+            } catch (IOException e) {
+                worker.failed(e);
+            }
+            think();
+        }
+        return worker;
+    }
+
+    /**
+     * Uploads a file of random content in chunks, the way the front-end does, and joins it. The join counts as
+     * an error unless it produces a file with the expected name and size.
+     *
+     * @return Name of the joined file
+     */
+    private String uploadFile(LoadClient client, Worker worker, String fileName, String checksum, byte[] content)
+            throws IOException {
+        final int chunkSize = profile.getChunkSizeBytes();
+
+        int part = 0;
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            final int start = offset;
+            final int length = Math.min(chunkSize, content.length - offset);
+            final String partName = fileName + ".part" + part++;
+            worker.timed(UPLOAD_PART, () -> {
+                client.uploadPart(checksum, partName, content, start, length);
+                return null;
+            });
+            worker.bytesUploaded += length;
+        }
+        // A join that mixed in parts from another upload still answers 200, so check what it produced.
+        return worker.timed(FINALIZE, () -> {
+            String joined = client.finalizeFile(checksum);
+            if (!fileName.equals(joined)) {
+                throw new IOException("Joining " + fileName + " returned '" + joined + "'");
+            }
+            long size = Files.size(uploadsDir.resolve(joined));
+            if (size != content.length) {
+                throw new IOException("Joined file " + joined + " is " + size + " bytes, expected " + content.length);
+            }
+            return joined;
+        });
+    }
+
+    /**
+     * Removes the parts directory and the joined file left by an upload. The server keeps both, so without this
+     * the uploads directory grows for as long as the run lasts.
+     */
+    private void discard(String fileName, String checksum) {
+        Path partsDir = uploadsDir.resolve(checksum);
+        if (Files.exists(partsDir)) {
+            deleteRecursively(partsDir);
+        }
+        try {
+            Files.deleteIfExists(uploadsDir.resolve(fileName));
+        } catch (IOException e) {
+            logger.warn(e.getMessage() + " while trying to delete '" + fileName + "'");
+        }
+    }
+
+    private static String fillRandom(byte[] content, MessageDigest digest) {
+        ThreadLocalRandom.current().nextBytes(content);
+        return toHex(digest.digest(content));
+    }
+
+    /**
+     * Returns the name to upload a file as. No extension, as the /play/{filename} mapping would strip it; the join
+     * cuts the part name at ".part".
+     */
+    private static String fileName(String name) {
+        return "lt-" + name;
+    }
+
+    private void think() {
+        if (profile.getThinkTimeMillis() > 0) {
+            try {
+                Thread.sleep(profile.getThinkTimeMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startServer(Path uploadsDir, WorkloadProfile profile) {
+        return new SpringApplicationBuilder(FileUpload.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--server.address=127.0.0.1",
+                        "--server.port=0",
+                        "--file.storage.uploadsDir=" + uploadsDir,
+                        "--logging.level.com.shyamanand.fileupload=" + profile.getAppLogLevel(),
+                        "--logging.level.com.shyamanand.fileupload.loadtest=INFO");
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unrecognised argument '" + arg + "', expected --name=value");
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    logger.warn(e.getMessage() + " while trying to delete '" + path + "'");
+                }
+            });
+        } catch (IOException e) {
+            logger.warn(e.getMessage() + " while cleaning up " + dir);
+        }
+    }
+
+    private static MessageDigest sha256() throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256");
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Per-thread results. Only touched by the thread running the worker until the phase is over.
+     */
+    private static class Worker {
+        final Map<String, LatencyRecorder> recorders = new HashMap<>();
+        long bytesUploaded;
+        long bytesPlayed;
+        private boolean reportedFailure;
+
+        <T> T timed(String operation, IoCall<T> call) throws IOException {
+            LatencyRecorder recorder = recorders.computeIfAbsent(operation, key -> new LatencyRecorder());
+            long start = System.nanoTime();
+            try {
+                T result = call.call();
+                recorder.record(System.nanoTime() - start);
+                return result;
+            } catch (IOException e) {
+                recorder.recordError();
+                throw e;
+            }
+        }
+
+        void failed(IOException e) {
+            // Errors are counted per operation; log only the first one per worker to keep the output readable.
+            if (!reportedFailure) {
+                logger.warn("{}: {}", Thread.currentThread().getName(), e.getMessage());
+                reportedFailure = true;
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private int count;
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public synchronized Thread newThread(Runnable runnable) {
+            return new Thread(runnable, prefix + "-" + count++);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.shyamanand.fileupload.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Named metrics collected from a run. A report can be stored as a properties file and read back as the baseline for
+ * later runs, which are then checked against it with {@link #regressionsAgainst(LoadReport, double)}.
+ */
+public class LoadReport {
+    private final Map<String, Double> metrics = new LinkedHashMap<>();
+
+    public void put(String name, double value) {
+        metrics.put(name, value);
+    }
+
+    public Double get(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * Adds throughput, latency percentiles, error count and number of successful samples for one kind of operation.
+     * Metrics under "info." are reported but not checked against the baseline; errors are covered by
+     * {@link #healthProblems(Collection, double)} instead, which allows for the profile's error rate.
+     *
+     * @param operation Operation name, eg. "upload-part"
+     * @param recorder  Samples recorded for the operation
+     * @param seconds   Length of the measured run
+     */
+    public void putOperation(String operation, LatencyRecorder recorder, double seconds) {
+        put("throughput." + operation + ".ops", recorder.getCount() / seconds);
+        put(operation + ".p50.ms", recorder.percentileMillis(0.50));
+        put(operation + ".p99.ms", recorder.percentileMillis(0.99));
+        put(operation + ".p999.ms", recorder.percentileMillis(0.999));
+        put("info." + operation + ".errors", recorder.getErrors());
+        put("info." + operation + ".samples", recorder.getCount());
+    }
+
+    /**
+     * Checks that the run itself worked: every expected operation succeeded at least once and failed no more
+     * often than allowed. A run that fails this says nothing about performance and must not become a baseline.
+     *
+     * @param operations   Operations the profile should have exercised
+     * @param maxErrorRate Allowed share of failed requests per operation, eg. 0.01 for 1%
+     * @return Description of each problem; empty when the run is healthy
+     */
+    public List<String> healthProblems(Collection<String> operations, double maxErrorRate) {
+        List<String> problems = new ArrayList<>();
+        for (String operation : operations) {
+            double samples = valueOr("info." + operation + ".samples", 0);
+            double errors = valueOr("info." + operation + ".errors", 0);
+            if (samples == 0) {
+                problems.add(String.format("%s: no successful requests, %.0f errors", operation, errors));
+            } else if (errors / (samples + errors) > maxErrorRate) {
+                problems.add(String.format("%s: %.0f of %.0f requests failed", operation, errors, samples + errors));
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Returns the number of failed requests across all operations.
+     */
+    public double totalErrors() {
+        double errors = 0;
+        for (Map.Entry<String, Double> metric : metrics.entrySet()) {
+            if (metric.getKey().endsWith(".errors")) {
+                errors += metric.getValue();
+            }
+        }
+        return errors;
+    }
+
+    private double valueOr(String name, double defaultValue) {
+        Double value = metrics.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public void print(PrintStream out) {
+        for (Map.Entry<String, Double> metric : metrics.entrySet()) {
+            out.printf("  %-32s %12.3f%n", metric.getKey(), metric.getValue());
+        }
+    }
+
+    public void store(Path path, String comment) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Double> metric : metrics.entrySet()) {
+            properties.setProperty(metric.getKey(), String.format(Locale.ROOT, "%.3f", metric.getValue()));
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(path)) {
+            properties.store(out, comment);
+        }
+    }
+
+    public static LoadReport load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+        LoadReport report = new LoadReport();
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            report.put(name, Double.parseDouble(properties.getProperty(name)));
+        }
+        return report;
+    }
+
+    /**
+     * Compares this report with a baseline. Throughput metrics regress when they drop, everything else regresses
+     * when it grows. Small absolute changes are let through so that near-zero metrics do not trip the gate on noise,
+     * and tail percentiles are only checked when both runs have enough samples for them to be more than the few
+     * slowest requests.
+     *
+     * @param baseline  Report from the baseline run
+     * @param tolerance Allowed relative change, eg. 0.10 for 10%
+     * @return Description of each regressed metric; empty when the run is within the baseline
+     */
+    public List<String> regressionsAgainst(LoadReport baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> expected : baseline.metrics.entrySet()) {
+            String name = expected.getKey();
+            if (name.startsWith("info.") || !enoughSamples(name, baseline)) {
+                continue;
+            }
+            Double actual = metrics.get(name);
+            if (actual == null) {
+                regressions.add(name + ": missing from this run");
+                continue;
+            }
+
+            double limit;
+            boolean regressed;
+            if (name.startsWith("throughput.")) {
+                limit = expected.getValue() * (1 - tolerance);
+                regressed = actual < limit;
+            } else {
+                limit = expected.getValue() * (1 + tolerance) + slack(name);
+                regressed = actual > limit;
+            }
+            if (regressed) {
+                regressions.add(String.format("%s: %.3f, baseline %.3f, limit %.3f",
+                        name, actual, expected.getValue(), limit));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Whether both this run and the baseline have enough samples of an operation to gate the given percentile:
+     * 100 for p99 and 1000 for p999.
+     */
+    private boolean enoughSamples(String name, LoadReport baseline) {
+        int required;
+        if (name.endsWith(".p999.ms")) required = 1000;
+        else if (name.endsWith(".p99.ms")) required = 100;
+        else return true;
+
+        String samples = "info." + name.substring(0, name.indexOf('.')) + ".samples";
+        return Math.min(valueOr(samples, 0), baseline.valueOr(samples, 0)) >= required;
+    }
+
+    private static double slack(String name) {
+        if (name.endsWith(".ms")) return 1.0;
+        if (name.equals("gc.count.per-1k-ops")) return 1;
+        if (name.equals("gc.pause-ms.per-1k-ops")) return 5;
+        if (name.equals("fd.growth.per-1k-ops")) return 2;
+        if (name.startsWith("heap.")) return 8;
+        return 0;
+    }
+}
@@ -0,0 +1,148 @@
+package com.shyamanand.fileupload.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Describes the traffic shape for a load test run: how many clients upload and play files, how big the files are
+ * and how long the run lasts. Profiles are read from properties files, either from the classpath under
+ * {@code loadtest/profiles/} or from a path on disk.
+ */
+public class WorkloadProfile {
+    private static final String PROFILES_DIR = "loadtest/profiles/";
+
+    private final String name;
+    private final int uploaders;
+    private final int viewers;
+    private final int fileSizeBytes;
+    private final int chunkSizeBytes;
+    private final int seedFiles;
+    private final int seeksPerPlay;
+    private final long thinkTimeMillis;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final double tolerance;
+    private final double maxErrorRate;
+    private final String appLogLevel;
+
+    private WorkloadProfile(String name, Properties properties) {
+        this.name = name;
+        this.uploaders = intValue(properties, "uploaders", 4);
+        this.viewers = intValue(properties, "viewers", 4);
+        this.fileSizeBytes = intValue(properties, "fileSizeKb", 1024) * 1024;
+        this.chunkSizeBytes = intValue(properties, "chunkSizeKb", 256) * 1024;
+        this.seedFiles = intValue(properties, "seedFiles", 4);
+        this.seeksPerPlay = intValue(properties, "seeksPerPlay", 2);
+        this.thinkTimeMillis = intValue(properties, "thinkTimeMillis", 0);
+        this.warmupSeconds = intValue(properties, "warmupSeconds", 10);
+        this.durationSeconds = intValue(properties, "durationSeconds", 30);
+        this.tolerance = Double.parseDouble(properties.getProperty("tolerance", "0.10"));
+        this.maxErrorRate = Double.parseDouble(properties.getProperty("maxErrorRate", "0.01"));
+        this.appLogLevel = properties.getProperty("appLogLevel", "WARN");
+
+        if (uploaders + viewers <= 0)
+            throw new IllegalArgumentException("Profile '" + name + "' has no uploaders or viewers");
+        if (chunkSizeBytes <= 0 || fileSizeBytes <= 0)
+            throw new IllegalArgumentException("Profile '" + name + "' must have a positive file and chunk size");
+        if (viewers > 0 && seedFiles <= 0)
+            throw new IllegalArgumentException("Profile '" + name + "' has viewers but no seed files to play");
+    }
+
+    /**
+     * Loads a profile by name from the classpath, or from the file system if {@code profile} is a path to a
+     * properties file.
+     *
+     * @param profile Profile name, eg. "mixed", or path to a properties file
+     * @return The loaded profile
+     * @throws IOException if the profile cannot be found or read
+     */
+    public static WorkloadProfile load(String profile) throws IOException {
+        Properties properties = new Properties();
+        Path path = Paths.get(profile);
+        if (profile.endsWith(".properties") && Files.exists(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                properties.load(in);
+            }
+            String fileName = path.getFileName().toString();
+            return new WorkloadProfile(fileName.substring(0, fileName.length() - ".properties".length()), properties);
+        }
+
+        String resource = PROFILES_DIR + profile + ".properties";
+        try (InputStream in = WorkloadProfile.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Cannot find workload profile '" + profile + "'");
+            }
+            properties.load(in);
+        }
+        return new WorkloadProfile(profile, properties);
+    }
+
+    private static int intValue(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getUploaders() {
+        return uploaders;
+    }
+
+    public int getViewers() {
+        return viewers;
+    }
+
+    public int getFileSizeBytes() {
+        return fileSizeBytes;
+    }
+
+    public int getChunkSizeBytes() {
+        return chunkSizeBytes;
+    }
+
+    public int getSeedFiles() {
+        return seedFiles;
+    }
+
+    public int getSeeksPerPlay() {
+        return seeksPerPlay;
+    }
+
+    public long getThinkTimeMillis() {
+        return thinkTimeMillis;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    public String getAppLogLevel() {
+        return appLogLevel;
+    }
+
+    @Override
+    public String toString() {
+        return name + " [uploaders=" + uploaders + ", viewers=" + viewers + ", fileSize=" + fileSizeBytes / 1024
+                + "KB, chunkSize=" + chunkSizeBytes / 1024 + "KB, seedFiles=" + seedFiles + ", seeksPerPlay="
+                + seeksPerPlay + ", thinkTime=" + thinkTimeMillis + "ms, warmup=" + warmupSeconds + "s, duration="
+                + durationSeconds + "s]";
+    }
+}
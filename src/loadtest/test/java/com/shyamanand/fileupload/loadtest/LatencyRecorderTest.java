@@ -0,0 +1,66 @@
+package com.shyamanand.fileupload.loadtest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyRecorderTest {
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    public void percentilesOfEmptyRecorderAreZero() {
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        assertEquals(0, recorder.percentileMillis(0.50), 0);
+        assertEquals(0, recorder.percentileMillis(0.999), 0);
+    }
+
+    @Test
+    public void percentilesOfSingleSampleAreThatSample() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(5 * MILLIS);
+
+        assertEquals(5, recorder.percentileMillis(0.50), 0);
+        assertEquals(5, recorder.percentileMillis(0.99), 0);
+        assertEquals(5, recorder.percentileMillis(0.999), 0);
+    }
+
+    @Test
+    public void percentilesOfThousandSamplesUseNearestRank() {
+        List<Long> samples = new ArrayList<>();
+        for (long i = 1; i <= 1000; i++) {
+            samples.add(i * MILLIS);
+        }
+        Collections.shuffle(samples, new Random(42));
+        LatencyRecorder recorder = new LatencyRecorder();
+        samples.forEach(recorder::record);
+
+        assertEquals(1000, recorder.getCount());
+        assertEquals(1, recorder.percentileMillis(0.0), 0);
+        assertEquals(500, recorder.percentileMillis(0.50), 0);
+        assertEquals(990, recorder.percentileMillis(0.99), 0);
+        assertEquals(999, recorder.percentileMillis(0.999), 0);
+        assertEquals(1000, recorder.percentileMillis(1.0), 0);
+    }
+
+    @Test
+    public void mergeCombinesSamplesAndErrors() {
+        LatencyRecorder first = new LatencyRecorder();
+        first.record(1 * MILLIS);
+        first.recordError();
+        LatencyRecorder second = new LatencyRecorder();
+        second.record(3 * MILLIS);
+        second.recordError();
+
+        first.merge(second);
+
+        assertEquals(2, first.getCount());
+        assertEquals(2, first.getErrors());
+        assertEquals(3, first.percentileMillis(1.0), 0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.shyamanand.fileupload.loadtest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadReportTest {
+    private static final double TOLERANCE = 0.10;
+
+    @Test
+    public void throughputRegressesOnlyWhenItDrops() {
+        LoadReport baseline = report("throughput.play.ops", 100);
+
+        assertEquals(1, report("throughput.play.ops", 89).regressionsAgainst(baseline, TOLERANCE).size());
+        assertTrue(report("throughput.play.ops", 91).regressionsAgainst(baseline, TOLERANCE).isEmpty());
+        assertTrue(report("throughput.play.ops", 200).regressionsAgainst(baseline, TOLERANCE).isEmpty());
+    }
+
+    @Test
+    public void latencyRegressesOnlyWhenItGrows() {
+        // Limit is 10 * 1.1 plus 1ms of slack
+        LoadReport baseline = report("play.p50.ms", 10);
+
+        assertEquals(1, report("play.p50.ms", 12.1).regressionsAgainst(baseline, TOLERANCE).size());
+        assertTrue(report("play.p50.ms", 11.9).regressionsAgainst(baseline, TOLERANCE).isEmpty());
+        assertTrue(report("play.p50.ms", 2).regressionsAgainst(baseline, TOLERANCE).isEmpty());
+    }
+
+    @Test
+    public void slackLetsSmallAbsoluteChangesThrough() {
+        assertTrue(report("play.p50.ms", 1.1).regressionsAgainst(report("play.p50.ms", 0.2), TOLERANCE).isEmpty());
+        assertTrue(report("heap.used.peak.mb", 107).regressionsAgainst(report("heap.used.peak.mb", 90), TOLERANCE)
+                .isEmpty());
+        assertTrue(report("gc.count.per-1k-ops", 0.9).regressionsAgainst(report("gc.count.per-1k-ops", 0), TOLERANCE)
+                .isEmpty());
+        assertEquals(1, report("gc.count.per-1k-ops", 1.1)
+                .regressionsAgainst(report("gc.count.per-1k-ops", 0), TOLERANCE).size());
+    }
+
+    @Test
+    public void p99IsGatedFromHundredSamplesInBothRuns() {
+        LoadReport baseline = report("finalize.p99.ms", 10, "info.finalize.samples", 500);
+
+        assertTrue(report("finalize.p99.ms", 50, "info.finalize.samples", 99)
+                .regressionsAgainst(baseline, TOLERANCE).isEmpty());
+        assertTrue(report("finalize.p99.ms", 50, "info.finalize.samples", 500)
+                .regressionsAgainst(report("finalize.p99.ms", 10, "info.finalize.samples", 99), TOLERANCE).isEmpty());
+        assertEquals(1, report("finalize.p99.ms", 50, "info.finalize.samples", 100)
+                .regressionsAgainst(baseline, TOLERANCE).size());
+    }
+
+    @Test
+    public void p999IsGatedFromThousandSamplesInBothRuns() {
+        LoadReport baseline = report("seek.p999.ms", 10, "info.seek.samples", 5000);
+
+        assertTrue(report("seek.p999.ms", 50, "info.seek.samples", 999)
+                .regressionsAgainst(baseline, TOLERANCE).isEmpty());
+        assertEquals(1, report("seek.p999.ms", 50, "info.seek.samples", 1000)
+                .regressionsAgainst(baseline, TOLERANCE).size());
+    }
+
+    @Test
+    public void metricMissingFromRunIsARegression() {
+        List<String> regressions = report("throughput.play.ops", 100)
+                .regressionsAgainst(report("throughput.play.ops", 100, "throughput.seek.ops", 100), TOLERANCE);
+
+        assertEquals(Collections.singletonList("throughput.seek.ops: missing from this run"), regressions);
+    }
+
+    @Test
+    public void infoMetricsAreNotGated() {
+        LoadReport baseline = report("info.play.errors", 0, "info.gc.count", 10, "info.play.mb-per-s", 100);
+        LoadReport current = report("info.play.errors", 5, "info.gc.count", 50, "info.play.mb-per-s", 1);
+
+        assertTrue(current.regressionsAgainst(baseline, TOLERANCE).isEmpty());
+    }
+
+    @Test
+    public void errorRateAtTheLimitIsHealthy() {
+        LoadReport report = report("info.play.samples", 99, "info.play.errors", 1);
+
+        assertTrue(report.healthProblems(Collections.singletonList("play"), 0.01).isEmpty());
+    }
+
+    @Test
+    public void errorRateAboveTheLimitIsAProblem() {
+        LoadReport report = report("info.play.samples", 98, "info.play.errors", 2);
+
+        assertEquals(1, report.healthProblems(Collections.singletonList("play"), 0.01).size());
+    }
+
+    @Test
+    public void operationWithoutSuccessesIsAProblem() {
+        LoadReport report = report("info.play.samples", 0, "info.play.errors", 5);
+
+        // seek never ran at all
+        assertEquals(2, report.healthProblems(Arrays.asList("play", "seek"), 0.01).size());
+    }
+
+    @Test
+    public void totalErrorsAddsUpAllOperations() {
+        LoadReport report = report("info.play.errors", 2, "info.seek.errors", 3, "info.seek.samples", 10);
+
+        assertEquals(5, report.totalErrors(), 0);
+    }
+
+    private static LoadReport report(Object... metrics) {
+        LoadReport report = new LoadReport();
+        for (int i = 0; i < metrics.length; i += 2) {
+            report.put((String) metrics[i], ((Number) metrics[i + 1]).doubleValue());
+        }
+        return report;
+    }
+}